@@ -17,6 +17,9 @@
 package org.apache.nifi.processors.tika;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -65,6 +68,10 @@ public class ConvertDocumentToText extends AbstractProcessor {
 
     private TikaConfig config;
     private Detector detector;
+    private MimeTypeTable mimeTypeTable;
+    private volatile DocumentSpooler spooler;
+    private volatile FilenameTemplate outputFilename;
+    private volatile List<String> passwords;
 
     public static final PropertyDescriptor MAX_FILE_SIZE = new PropertyDescriptor
             .Builder().name("Maximum File Size")
@@ -78,12 +85,33 @@ public class ConvertDocumentToText extends AbstractProcessor {
     public static final PropertyDescriptor PDF_PASSWORD = new PropertyDescriptor.Builder()
             .name("PDF Password")
             .displayName("PDF Password")
-            .description("The password for the PDF, if needed")
+            .description("The password for encrypted documents, if needed. It is tried before any " +
+                    "passwords in the Password File")
             .required(false)
             .sensitive(true)
+            .expressionLanguageSupported(true)
             .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
             .build();
 
+    public static final PropertyDescriptor PASSWORD_FILE = new PropertyDescriptor.Builder()
+            .name("Password File")
+            .displayName("Password File")
+            .description("A file with one password per line to try, in order, on encrypted documents")
+            .required(false)
+            .addValidator(StandardValidators.FILE_EXISTS_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor OUTPUT_FILENAME = new PropertyDescriptor.Builder()
+            .name("Output Filename")
+            .displayName("Output Filename")
+            .description("Template for the filename of the converted text. {filename} is the original " +
+                    "filename, {basename} is the original filename without the extension of its detected " +
+                    "MIME type, and {extension} is that extension")
+            .required(true)
+            .defaultValue("{basename}.txt")
+            .addValidator(FilenameTemplate.VALIDATOR)
+            .build();
+
     public static final Relationship REL_SUCCESS = new Relationship.Builder()
             .name("success")
             .description(
@@ -100,6 +128,14 @@ public class ConvertDocumentToText extends AbstractProcessor {
             )
             .build();
 
+    public static final Relationship REL_ENCRYPTED = new Relationship.Builder()
+            .name("encrypted")
+            .description(
+                "Any FlowFile that is encrypted and can't be decrypted with " +
+                "the configured passwords is routed to this relationship"
+            )
+            .build();
+
     public static final Relationship REL_ORIGINAL = new Relationship.Builder()
             .name("original")
             .description(
@@ -115,15 +151,21 @@ public class ConvertDocumentToText extends AbstractProcessor {
     protected void init(final ProcessorInitializationContext context) {
         this.config = TikaConfig.getDefaultConfig();
         this.detector = config.getDetector();
+        this.mimeTypeTable = new MimeTypeTable(config.getMimeRepository());
 
         final List<PropertyDescriptor> descriptors = new ArrayList<PropertyDescriptor>();
         descriptors.add(MAX_FILE_SIZE);
         descriptors.add(PDF_PASSWORD);
+        descriptors.add(PASSWORD_FILE);
+        descriptors.add(OUTPUT_FILENAME);
+        descriptors.add(DocumentSpooler.SPOOL_MEMORY_THRESHOLD);
+        descriptors.add(DocumentSpooler.SPOOL_DIRECTORY);
         this.descriptors = Collections.unmodifiableList(descriptors);
 
         final Set<Relationship> relationships = new HashSet<Relationship>();
         relationships.add(REL_SUCCESS);
         relationships.add(REL_FAILURE);
+        relationships.add(REL_ENCRYPTED);
         relationships.add(REL_ORIGINAL);
         this.relationships = Collections.unmodifiableSet(relationships);
     }
@@ -139,8 +181,20 @@ public class ConvertDocumentToText extends AbstractProcessor {
     }
 
     @OnScheduled
-    public void onScheduled(final ProcessContext context) {
-
+    public void onScheduled(final ProcessContext context) throws IOException {
+        this.spooler = DocumentSpooler.create(context);
+        this.outputFilename = FilenameTemplate.compile(context.getProperty(OUTPUT_FILENAME).getValue());
+
+        final List<String> passwords = new ArrayList<String>();
+        final String passwordFile = context.getProperty(PASSWORD_FILE).getValue();
+        if (passwordFile != null && !passwordFile.isEmpty()) {
+            for (final String password : Files.readAllLines(Paths.get(passwordFile), StandardCharsets.UTF_8)) {
+                if (!password.isEmpty()) {
+                    passwords.add(password);
+                }
+            }
+        }
+        this.passwords = Collections.unmodifiableList(passwords);
     }
 
     @Override
@@ -159,17 +213,13 @@ public class ConvertDocumentToText extends AbstractProcessor {
             return;
         }
 
-        final BodyContentHandler parserHandler = new BodyContentHandler(maxFileSize > 0 ? maxFileSize : -1);
-        final ParseContext parserContext = new ParseContext();
-
-        if (context.getProperty(PDF_PASSWORD).getValue() != null && !"".equals(context.getProperty(PDF_PASSWORD).getValue())) {
-            parserContext.set(PasswordProvider.class, new PasswordProvider() {
-                @Override
-                public String getPassword(Metadata metadata) {
-                    return context.getProperty(PDF_PASSWORD).getValue();
-                }
-            });
+        // Passwords to try, in order, if the document turns out to be encrypted
+        final List<String> candidatePasswords = new ArrayList<String>();
+        final String password = context.getProperty(PDF_PASSWORD).evaluateAttributeExpressions(flowFile).getValue();
+        if (password != null && !password.isEmpty()) {
+            candidatePasswords.add(password);
         }
+        candidatePasswords.addAll(passwords);
 
         final AutoDetectParser parser = new AutoDetectParser();
 
@@ -183,13 +233,14 @@ public class ConvertDocumentToText extends AbstractProcessor {
         final AtomicReference<FlowFile> textRef =
             new AtomicReference<FlowFile>(session.clone(flowFile));
         final AtomicBoolean failedRef = new AtomicBoolean(false);
+        final AtomicBoolean encryptedRef = new AtomicBoolean(false);
 
         session.read(flowFile, new InputStreamCallback() {
             @Override
             public void process(final InputStream stream) throws IOException {
-                try (final InputStream in = new BufferedInputStream(stream)) {
-                    final TikaInputStream tikaStream = TikaInputStream.get(in);
-                    final Metadata metadata = new Metadata();
+                try (final DocumentSpooler.Spool spool = spooler.spool(stream, flowFile.getSize())) {
+                    final TikaInputStream tikaStream = spool.getStream();
+                    Metadata metadata = new Metadata();
 
                     // Add filename if it exists
                     if (filename != null) {
@@ -203,7 +254,7 @@ public class ConvertDocumentToText extends AbstractProcessor {
                     // Get MIME extension
                     String mimeExt = null;
                     try {
-                        mimeExt = config.getMimeRepository().forName(mimeType).getExtension();
+                        mimeExt = mimeTypeTable.get(mimeType).getExtension();
                         if (mimeExt == null || mimeExt.isEmpty()) {
                             getLogger().warn("MIME type extension is {}", new Object[]{mimeExt == null ? "null" : "empty"});
                         }
@@ -211,19 +262,50 @@ public class ConvertDocumentToText extends AbstractProcessor {
                         getLogger().warn(e.getMessage(), e);
                     }
 
-                    // Get document metadata
-                    try {
-                        parser.parse(tikaStream, parserHandler, metadata, parserContext);
-                    }
-                    catch (TikaException e) {
-                        getLogger().error(e.getMessage(), e);
-                        failedRef.set(true);
+                    // Work out which passwords to parse with, rejecting documents none of them open
+                    final List<String> attempts = EncryptionDetector.passwordsToTry(mediatype, spool, candidatePasswords);
+                    if (attempts.isEmpty()) {
+                        getLogger().warn("FlowFile {} is encrypted and none of the configured passwords decrypt it", new Object[]{flowFile});
+                        encryptedRef.set(true);
                         return;
+                    }
 
+                    // Get document metadata, moving on to the next password only on decryption errors
+                    BodyContentHandler parserHandler = null;
+                    for (int i = 0; i < attempts.size() && parserHandler == null; i++) {
+                        TikaInputStream parserStream = tikaStream;
+                        if (i > 0) {
+                            // Start the next attempt over from a clean slate
+                            parserStream = spool.openStream();
+                            metadata = new Metadata();
+                            if (filename != null) {
+                                metadata.add(TikaMetadataKeys.RESOURCE_NAME_KEY, filename);
+                            }
+                        }
+
+                        final BodyContentHandler handler = new BodyContentHandler(maxFileSize > 0 ? maxFileSize : -1);
+                        final ParseContext parserContext = new ParseContext();
+                        if (attempts.get(i) != null) {
+                            parserContext.set(PasswordProvider.class, new StaticPasswordProvider(attempts.get(i)));
+                        }
+
+                        try {
+                            parser.parse(parserStream, handler, metadata, parserContext);
+                            parserHandler = handler;
+                        }
+                        catch (TikaException | SAXException e) {
+                            if (!EncryptionDetector.isPasswordError(e)) {
+                                getLogger().error(e.getMessage(), e);
+                                failedRef.set(true);
+                                return;
+                            }
+                            getLogger().debug("FlowFile {} could not be decrypted: {}", new Object[]{flowFile, e.getMessage()});
+                        }
                     }
-                    catch (SAXException e) {
-                        getLogger().error(e.getMessage(), e);
-                        failedRef.set(true);
+
+                    if (parserHandler == null) {
+                        getLogger().warn("FlowFile {} is encrypted and none of the configured passwords decrypt it", new Object[]{flowFile});
+                        encryptedRef.set(true);
                         return;
                     }
 
@@ -239,18 +321,19 @@ public class ConvertDocumentToText extends AbstractProcessor {
                     FlowFile text = textRef.get();
                     text = session.putAttribute(text, CoreAttributes.MIME_TYPE.key(), mimeType);
                     text = session.putAttribute(text, "mime.extension", mimeExt);
-                    if (filename != null && !filename.isEmpty() && mimeExt != null && !mimeExt.isEmpty()) {
-                        text = session.putAttribute(text, CoreAttributes.FILENAME.key(), filename.replaceAll(mimeExt, ".txt"));
+                    if (filename != null && !filename.isEmpty()) {
+                        text = session.putAttribute(text, CoreAttributes.FILENAME.key(), outputFilename.apply(filename, mimeExt));
                     }
                     text = session.putAllAttributes(text, attributes);
 
                     // Write plain text to FlowFile contents
                     final FlowFile _text = text;
+                    final BodyContentHandler _parserHandler = parserHandler;
                     text = session.write(text, new OutputStreamCallback() {
                         @Override
                         public void process(final OutputStream stream) throws IOException {
                             try (final OutputStream out = new BufferedOutputStream(stream)) {
-                                final byte[] bytes = parserHandler.toString().getBytes();
+                                final byte[] bytes = _parserHandler.toString().getBytes();
                                 if (bytes.length > 0) {
                                     out.write(bytes);
                                 }
@@ -269,6 +352,13 @@ public class ConvertDocumentToText extends AbstractProcessor {
 
         final FlowFile text = textRef.get();
         final boolean failed = failedRef.get();
+        final boolean encrypted = encryptedRef.get();
+
+        if (encrypted) {
+            session.transfer(flowFile, REL_ENCRYPTED);
+            session.remove(text);
+            return;
+        }
 
         if (failed) {
             session.transfer(flowFile, REL_FAILURE);
@@ -279,4 +369,18 @@ public class ConvertDocumentToText extends AbstractProcessor {
         session.transfer(flowFile, REL_ORIGINAL);
         session.transfer(text, REL_SUCCESS);
     }
+
+    private static class StaticPasswordProvider implements PasswordProvider {
+
+        private final String password;
+
+        StaticPasswordProvider(final String password) {
+            this.password = password;
+        }
+
+        @Override
+        public String getPassword(final Metadata metadata) {
+            return password;
+        }
+    }
 }
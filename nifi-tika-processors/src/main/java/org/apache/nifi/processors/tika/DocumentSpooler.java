@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.tika;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.util.StandardValidators;
+
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+
+/**
+ * Spools FlowFile content so that random access parsers (PDF, ZIP/OOXML, etc.)
+ * never have to buffer it themselves. Content at or below the memory threshold
+ * is copied into a per-thread buffer that is reused across FlowFiles; anything
+ * larger is written to a temporary file in the configured spool directory and
+ * handed to Tika as a file, which is deleted as soon as the spool is closed.
+ */
+final class DocumentSpooler {
+
+    public static final PropertyDescriptor SPOOL_MEMORY_THRESHOLD = new PropertyDescriptor.Builder()
+            .name("Spool Memory Threshold")
+            .displayName("Spool Memory Threshold")
+            .description("Documents up to this size are buffered in memory before parsing; " +
+                    "larger documents are spooled to a temporary file in the Spool Directory")
+            .required(true)
+            .defaultValue("1MB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor SPOOL_DIRECTORY = new PropertyDescriptor.Builder()
+            .name("Spool Directory")
+            .displayName("Spool Directory")
+            .description("Directory where documents larger than the Spool Memory Threshold are " +
+                    "temporarily written for parsing. Defaults to the JVM temporary directory")
+            .required(false)
+            .addValidator(StandardValidators.createDirectoryExistsValidator(false, false))
+            .build();
+
+    // Leave some headroom below Integer.MAX_VALUE since some VMs reserve header words in arrays
+    private static final long MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+    private final long memoryThreshold;
+    private final File directory;
+
+    private final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[0];
+        }
+    };
+
+    DocumentSpooler(final long memoryThreshold, final File directory) {
+        this.memoryThreshold = Math.max(0L, Math.min(memoryThreshold, MAX_BUFFER_SIZE));
+        this.directory = directory;
+    }
+
+    static DocumentSpooler create(final ProcessContext context) {
+        final long memoryThreshold = context.getProperty(SPOOL_MEMORY_THRESHOLD).asDataSize(DataUnit.B).longValue();
+        final String directory = context.getProperty(SPOOL_DIRECTORY).getValue();
+        return new DocumentSpooler(memoryThreshold, directory == null || directory.isEmpty() ? null : new File(directory));
+    }
+
+    /**
+     * Spools the given content, which is expected to be {@code size} bytes long.
+     * The returned spool must be closed once parsing is finished, and the stream
+     * it exposes must not be used after that.
+     */
+    Spool spool(final InputStream in, final long size) throws IOException {
+        if (size <= memoryThreshold) {
+            byte[] buffer = buffers.get();
+            if (buffer.length < size) {
+                buffer = new byte[(int) size];
+                buffers.set(buffer);
+            }
+
+            int length = 0;
+            int read;
+            while (length < size && (read = in.read(buffer, length, (int) size - length)) != -1) {
+                length += read;
+            }
+
+            // Content should never be longer than the FlowFile claims, but if it is
+            // then fall back to spooling everything, including what was already read
+            final int next = in.read();
+            if (next == -1) {
+                return new Spool(buffer, length, null, directory);
+            }
+            return spoolToFile(new SequenceInputStream(
+                    new ByteArrayInputStream(buffer, 0, length),
+                    new SequenceInputStream(new ByteArrayInputStream(new byte[]{(byte) next}), in)));
+        }
+        return spoolToFile(in);
+    }
+
+    private Spool spoolToFile(final InputStream in) throws IOException {
+        final File file = File.createTempFile("nifi-tika-", ".spool", directory);
+        try {
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return new Spool(null, 0, file, directory);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file.toPath());
+            throw e;
+        }
+    }
+
+    static final class Spool implements Closeable {
+
+        private final byte[] buffer;
+        private final int length;
+        private final File file;
+        private final List<TikaInputStream> streams = new ArrayList<TikaInputStream>();
+
+        // Container detectors and parsers ask in-memory streams for a file
+        // too, so keep those temporary files in the spool directory as well
+        private final TemporaryResources tmp = new TemporaryResources();
+
+        private Spool(final byte[] buffer, final int length, final File file, final File directory) {
+            this.buffer = buffer;
+            this.length = length;
+            this.file = file;
+            if (directory != null) {
+                tmp.setTemporaryFileDirectory(directory);
+            }
+        }
+
+        /**
+         * Returns the stream to detect and parse the content with. The same
+         * stream is returned every time.
+         */
+        TikaInputStream getStream() throws IOException {
+            return streams.isEmpty() ? openStream() : streams.get(0);
+        }
+
+        /**
+         * Opens a new stream over the content from the beginning, e.g. to
+         * parse it again after a failed attempt.
+         */
+        TikaInputStream openStream() throws IOException {
+            final TikaInputStream stream = file == null
+                    ? TikaInputStream.get(new ByteArrayInputStream(buffer, 0, length), tmp)
+                    : TikaInputStream.get(file);
+            streams.add(stream);
+            return stream;
+        }
+
+        /**
+         * Creates a temporary file in the spool directory, which is deleted
+         * when the spool is closed.
+         */
+        File createTemporaryFile() throws IOException {
+            return tmp.createTemporaryFile();
+        }
+
+        long getLength() {
+            return file == null ? length : file.length();
+        }
+
+        /**
+         * Reads up to {@code count} bytes of content starting at {@code offset}.
+         */
+        byte[] read(final long offset, final int count) throws IOException {
+            final int n = (int) Math.max(0L, Math.min(count, getLength() - offset));
+            final byte[] bytes = new byte[n];
+            if (file == null) {
+                System.arraycopy(buffer, (int) offset, bytes, 0, n);
+            } else {
+                try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                    raf.seek(offset);
+                    raf.readFully(bytes);
+                }
+            }
+            return bytes;
+        }
+
+        /**
+         * Returns true if the content contains the given bytes anywhere. This
+         * reads all of the content, so prefer searching known regions with
+         * {@link #read(long, int)} where possible.
+         */
+        boolean contains(final byte[] pattern) throws IOException {
+            if (file == null) {
+                return indexOf(buffer, length, pattern) >= 0;
+            }
+
+            // Carry the tail of each chunk over so matches across chunks aren't missed
+            final byte[] chunk = new byte[64 * 1024 + pattern.length];
+            int carried = 0;
+            try (final InputStream in = new FileInputStream(file)) {
+                int read;
+                while ((read = in.read(chunk, carried, chunk.length - carried)) != -1) {
+                    final int filled = carried + read;
+                    if (indexOf(chunk, filled, pattern) >= 0) {
+                        return true;
+                    }
+                    carried = Math.min(pattern.length - 1, filled);
+                    System.arraycopy(chunk, filled - carried, chunk, 0, carried);
+                }
+            }
+            return false;
+        }
+
+        private static int indexOf(final byte[] bytes, final int length, final byte[] pattern) {
+            outer:
+            for (int i = 0; i <= length - pattern.length; i++) {
+                for (int j = 0; j < pattern.length; j++) {
+                    if (bytes[i + j] != pattern[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                for (final TikaInputStream stream : streams) {
+                    stream.close();
+                }
+                tmp.close();
+            } finally {
+                if (file != null) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+        }
+    }
+}
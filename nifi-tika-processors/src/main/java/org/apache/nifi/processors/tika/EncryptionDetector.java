@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.tika;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.exceptions.CryptographyException;
+import org.apache.pdfbox.io.RandomAccess;
+import org.apache.pdfbox.io.RandomAccessFile;
+import org.apache.pdfbox.pdfparser.NonSequentialPDFParser;
+import org.apache.pdfbox.pdmodel.encryption.PDEncryptionDictionary;
+import org.apache.pdfbox.pdmodel.encryption.StandardDecryptionMaterial;
+import org.apache.pdfbox.pdmodel.encryption.StandardSecurityHandler;
+
+import org.apache.poi.EncryptedDocumentException;
+import org.apache.tika.mime.MediaType;
+
+/**
+ * Works out which passwords are worth trying on a spooled document before
+ * it is parsed. An encrypted document doesn't necessarily need a password:
+ * documents with only an owner password open with the empty user password,
+ * so that is always tried last.
+ *
+ * Password protected OOXML is already identified as such by the detector.
+ * PDFs are only treated as encrypted if the trailer dictionary, or the xref
+ * stream that replaces it, has an {@code /Encrypt} entry. Both live at the
+ * end of the file, where {@code startxref} points, or at the start for
+ * linearized files, so only those regions are searched. Tika's PDF parser
+ * ignores decryption failures and goes on to fail on garbled streams
+ * instead, so passwords for encrypted PDFs are checked up front against
+ * the encryption dictionary alone. Other formats report wrong passwords
+ * with an exception, which {@link #isPasswordError(Throwable)} recognizes.
+ */
+final class EncryptionDetector {
+
+    private static final MediaType PDF = MediaType.application("pdf");
+    private static final MediaType OOXML_PROTECTED = MediaType.application("x-tika-ooxml-protected");
+
+    private static final byte[] PDF_ENCRYPT = "/Encrypt".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PDF_STARTXREF = "startxref".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int PDF_REGION_SIZE = 64 * 1024;
+
+    private EncryptionDetector() {
+    }
+
+    /**
+     * Returns the passwords to parse the document with, in order, where null
+     * means no password. An empty list means the document is encrypted and
+     * none of the candidates open it.
+     */
+    static List<String> passwordsToTry(final MediaType type, final DocumentSpooler.Spool spool,
+                                       final List<String> candidates) throws IOException {
+        final String first = candidates.isEmpty() ? null : candidates.get(0);
+
+        if ("text".equals(type.getType())) {
+            return Collections.singletonList(first);
+        }
+
+        // Protected OOXML can't be opened without a password at all
+        if (OOXML_PROTECTED.equals(type)) {
+            return new ArrayList<String>(candidates);
+        }
+
+        if (PDF.equals(type)) {
+            if (!hasPdfEncryptEntry(spool)) {
+                return Collections.singletonList(first);
+            }
+            try {
+                final String password = findPdfPassword(spool, candidates);
+                if (password == null) {
+                    return Collections.emptyList();
+                }
+                return Collections.singletonList(password.isEmpty() ? null : password);
+            } catch (IOException | RuntimeException e) {
+                // Can't tell, so leave it to the parser to decide
+            }
+        }
+
+        final List<String> passwords = new ArrayList<String>(candidates);
+        passwords.add(null);
+        return passwords;
+    }
+
+    /**
+     * Returns true if a parse failed because the document couldn't be
+     * decrypted, rather than because it is corrupt or unsupported.
+     */
+    static boolean isPasswordError(final Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof EncryptedDocumentException
+                    || cause instanceof org.apache.tika.exception.EncryptedDocumentException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasPdfEncryptEntry(final DocumentSpooler.Spool spool) throws IOException {
+        final long length = spool.getLength();
+        if (length <= 2L * PDF_REGION_SIZE) {
+            return lastIndexOf(spool.read(0, (int) length), PDF_ENCRYPT) >= 0;
+        }
+
+        final byte[] tail = spool.read(length - PDF_REGION_SIZE, PDF_REGION_SIZE);
+        if (lastIndexOf(tail, PDF_ENCRYPT) >= 0 || lastIndexOf(spool.read(0, PDF_REGION_SIZE), PDF_ENCRYPT) >= 0) {
+            return true;
+        }
+
+        // Without a startxref in the tail the file is damaged or has trailing
+        // junk, so the trailer could be anywhere
+        final long startxref = parseStartxref(tail);
+        if (startxref < 0) {
+            return spool.contains(PDF_ENCRYPT);
+        }
+
+        // A large xref stream pushes its dictionary out of the tail
+        return startxref < length - PDF_REGION_SIZE
+                && lastIndexOf(spool.read(startxref, PDF_REGION_SIZE), PDF_ENCRYPT) >= 0;
+    }
+
+    /**
+     * Returns the offset following the last {@code startxref} keyword, or -1
+     * if there isn't one.
+     */
+    private static long parseStartxref(final byte[] bytes) {
+        final int keyword = lastIndexOf(bytes, PDF_STARTXREF);
+        if (keyword < 0) {
+            return -1;
+        }
+        int i = keyword + PDF_STARTXREF.length;
+        while (i < bytes.length && Character.isWhitespace(bytes[i])) {
+            i++;
+        }
+        final int digits = i;
+        long offset = 0;
+        while (i < bytes.length && i - digits < 18 && bytes[i] >= '0' && bytes[i] <= '9') {
+            offset = offset * 10 + (bytes[i++] - '0');
+        }
+        return i > digits ? offset : -1;
+    }
+
+    private static int lastIndexOf(final byte[] bytes, final byte[] pattern) {
+        outer:
+        for (int i = bytes.length - pattern.length; i >= 0; i--) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first candidate, or the empty user password, that opens
+     * the PDF, or null if none does. Only the xref and trailer are parsed,
+     * with the empty user password; the candidates are then checked against
+     * the encryption dictionary without decrypting anything.
+     */
+    private static String findPdfPassword(final DocumentSpooler.Spool spool, final List<String> candidates) throws IOException {
+        final File file = spool.getStream().getFile();
+        final RandomAccessFile scratch = new RandomAccessFile(spool.createTemporaryFile(), "rw");
+        try {
+            final TrailerParser parser = new TrailerParser(file, scratch);
+            try {
+                try {
+                    parser.parseEncryption();
+                    return "";
+                } catch (IOException e) {
+                    // Not the empty user password, unless something else went wrong
+                    if (parser.getDocument().getEncryptionDictionary() == null) {
+                        throw e;
+                    }
+                }
+
+                final COSDocument document = parser.getDocument();
+                final PDEncryptionDictionary encryption = new PDEncryptionDictionary(document.getEncryptionDictionary());
+                if (!StandardSecurityHandler.FILTER.equals(encryption.getFilter())) {
+                    throw new IOException("Unsupported PDF security handler " + encryption.getFilter());
+                }
+
+                final List<String> passwords = new ArrayList<String>(candidates);
+                passwords.add("");
+                for (final String password : passwords) {
+                    try {
+                        new StandardSecurityHandler().prepareForDecryption(
+                                encryption, document.getDocumentID(), new StandardDecryptionMaterial(password));
+                        return password;
+                    } catch (CryptographyException e) {
+                        // Wrong password, try the next one
+                    }
+                }
+                return null;
+            } finally {
+                parser.release();
+            }
+        } finally {
+            scratch.close();
+        }
+    }
+
+    /**
+     * Exposes the xref and trailer parsing that {@link NonSequentialPDFParser#parse()}
+     * starts with, without going on to load every page.
+     */
+    private static final class TrailerParser extends NonSequentialPDFParser {
+
+        private TrailerParser(final File file, final RandomAccess scratch) throws IOException {
+            super(file, scratch);
+        }
+
+        private void parseEncryption() throws IOException {
+            initialParse();
+        }
+
+        private void release() throws IOException {
+            try {
+                pdfSource.close();
+            } finally {
+                getDocument().close();
+            }
+        }
+    }
+}
@@ -63,6 +63,8 @@ public class ExtractDocumentMetadata extends AbstractProcessor {
 
     private TikaConfig config;
     private Detector detector;
+    private MimeTypeTable mimeTypeTable;
+    private volatile DocumentSpooler spooler;
 
     public static final Relationship REL_SUCCESS = new Relationship.Builder()
             .name("success")
@@ -95,8 +97,11 @@ public class ExtractDocumentMetadata extends AbstractProcessor {
     protected void init(final ProcessorInitializationContext context) {
         this.config = TikaConfig.getDefaultConfig();
         this.detector = config.getDetector();
+        this.mimeTypeTable = new MimeTypeTable(config.getMimeRepository());
 
         final List<PropertyDescriptor> descriptors = new ArrayList<PropertyDescriptor>();
+        descriptors.add(DocumentSpooler.SPOOL_MEMORY_THRESHOLD);
+        descriptors.add(DocumentSpooler.SPOOL_DIRECTORY);
         this.descriptors = Collections.unmodifiableList(descriptors);
 
         final Set<Relationship> relationships = new HashSet<Relationship>();
@@ -118,7 +123,7 @@ public class ExtractDocumentMetadata extends AbstractProcessor {
 
     @OnScheduled
     public void onScheduled(final ProcessContext context) {
-
+        this.spooler = DocumentSpooler.create(context);
     }
 
     @Override
@@ -143,8 +148,8 @@ public class ExtractDocumentMetadata extends AbstractProcessor {
         session.read(flowFile, new InputStreamCallback() {
             @Override
             public void process(final InputStream stream) throws IOException {
-                try (final InputStream in = new BufferedInputStream(stream)) {
-                    final TikaInputStream tikaStream = TikaInputStream.get(in);
+                try (final DocumentSpooler.Spool spool = spooler.spool(stream, flowFile.getSize())) {
+                    final TikaInputStream tikaStream = spool.getStream();
                     final Metadata metadata = new Metadata();
 
                     // Add filename if it exists
@@ -197,7 +202,7 @@ public class ExtractDocumentMetadata extends AbstractProcessor {
         // Get MIME extension
         String mimeExt = null;
         try {
-            mimeExt = config.getMimeRepository().forName(mimeType).getExtension();
+            mimeExt = mimeTypeTable.get(mimeType).getExtension();
             if (mimeExt == null || mimeExt.isEmpty()) {
                 getLogger().warn("MIME type extension is {}", new Object[]{mimeExt == null ? "null" : "empty"});
             }
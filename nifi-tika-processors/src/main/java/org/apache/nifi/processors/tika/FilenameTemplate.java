@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.tika;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.components.Validator;
+
+/**
+ * A file name template made up of literal text and the placeholders
+ * {@code {filename}}, {@code {basename}} and {@code {extension}}. The
+ * template is split into parts once so applying it is plain string
+ * concatenation. {@code {basename}} is the file name with the detected
+ * extension removed from the end only, so {@code report.pdf.backup.pdf}
+ * becomes {@code report.pdf.backup}.
+ */
+final class FilenameTemplate {
+
+    private enum Kind { LITERAL, FILENAME, BASENAME, EXTENSION }
+
+    private static final class Part {
+        private final Kind kind;
+        private final String text;
+
+        private Part(final Kind kind, final String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    static final Validator VALIDATOR = new Validator() {
+        @Override
+        public ValidationResult validate(final String subject, final String input, final ValidationContext context) {
+            String explanation = null;
+            try {
+                compile(input);
+            } catch (IllegalArgumentException e) {
+                explanation = e.getMessage();
+            }
+            return new ValidationResult.Builder()
+                    .subject(subject)
+                    .input(input)
+                    .valid(explanation == null)
+                    .explanation(explanation)
+                    .build();
+        }
+    };
+
+    private final List<Part> parts;
+
+    private FilenameTemplate(final List<Part> parts) {
+        this.parts = parts;
+    }
+
+    static FilenameTemplate compile(final String template) {
+        if (template == null || template.isEmpty()) {
+            throw new IllegalArgumentException("Template must not be empty");
+        }
+
+        final List<Part> parts = new ArrayList<Part>();
+
+        int start = 0;
+        while (start < template.length()) {
+            final int open = template.indexOf('{', start);
+            if (open < 0) {
+                parts.add(new Part(Kind.LITERAL, template.substring(start)));
+                break;
+            }
+            final int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unterminated placeholder at position " + open);
+            }
+            if (open > start) {
+                parts.add(new Part(Kind.LITERAL, template.substring(start, open)));
+            }
+            final String name = template.substring(open + 1, close);
+            if ("filename".equals(name)) {
+                parts.add(new Part(Kind.FILENAME, null));
+            } else if ("basename".equals(name)) {
+                parts.add(new Part(Kind.BASENAME, null));
+            } else if ("extension".equals(name)) {
+                parts.add(new Part(Kind.EXTENSION, null));
+            } else {
+                throw new IllegalArgumentException("Unknown placeholder {" + name + "}");
+            }
+            start = close + 1;
+        }
+
+        return new FilenameTemplate(Collections.unmodifiableList(parts));
+    }
+
+    /**
+     * Renders the template for a file name and the extension, with leading
+     * dot, of its detected MIME type. The extension may be null or empty.
+     */
+    String apply(final String filename, final String extension) {
+        final String ext = extension == null ? "" : extension;
+        final StringBuilder sb = new StringBuilder(filename.length() + 16);
+        for (final Part part : parts) {
+            switch (part.kind) {
+                case LITERAL:
+                    sb.append(part.text);
+                    break;
+                case FILENAME:
+                    sb.append(filename);
+                    break;
+                case BASENAME:
+                    if (!ext.isEmpty() && filename.length() > ext.length()
+                            && filename.regionMatches(true, filename.length() - ext.length(), ext, 0, ext.length())) {
+                        sb.append(filename, 0, filename.length() - ext.length());
+                    } else {
+                        sb.append(filename);
+                    }
+                    break;
+                case EXTENSION:
+                    sb.append(ext);
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+}
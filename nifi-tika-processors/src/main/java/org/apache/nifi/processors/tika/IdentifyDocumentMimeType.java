@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.tika;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.nifi.annotation.behavior.SupportsBatching;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.processor.*;
+import org.apache.nifi.processor.io.InputStreamCallback;
+import org.apache.nifi.annotation.behavior.ReadsAttribute;
+import org.apache.nifi.annotation.behavior.ReadsAttributes;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.SeeAlso;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.util.StandardValidators;
+
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaMetadataKeys;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MimeTypeException;
+import org.apache.tika.mime.MimeTypes;
+
+@SupportsBatching
+@Tags({"pdf", "doc", "tika", "mime", "identify"})
+@CapabilityDescription("Identify the MIME type of PDF files, Word documents, etc. from their leading bytes " +
+        "without parsing them. Container formats (ZIP, OLE2) that cannot be told apart from their headers " +
+        "alone are identified from the full content, the same way ConvertDocumentToText and " +
+        "ExtractDocumentMetadata do")
+@SeeAlso({ConvertDocumentToText.class, ExtractDocumentMetadata.class})
+@ReadsAttributes({@ReadsAttribute(attribute="filename", description="Used to match MIME type file name patterns")})
+@WritesAttributes({
+        @WritesAttribute(attribute="mime.type", description="The detected MIME type"),
+        @WritesAttribute(attribute="mime.extension", description="The preferred file extension for the detected MIME type")})
+public class IdentifyDocumentMimeType extends AbstractProcessor {
+
+    // Types the magic/glob index only resolves to a container, which the
+    // container aware detectors refine by looking at the whole document
+    private static final Set<MediaType> CONTAINER_TYPES = Collections.unmodifiableSet(new HashSet<MediaType>(Arrays.asList(
+            MediaType.application("zip"),
+            MediaType.application("x-tika-ooxml"),
+            MediaType.application("x-tika-msoffice"))));
+
+    // Leave some headroom below Integer.MAX_VALUE since some VMs reserve header words in arrays
+    private static final long MAX_HEADER_SIZE = Integer.MAX_VALUE - 8;
+
+    private TikaConfig config;
+    private Detector detector;
+    private MimeTypes mimeTypes;
+    private MimeTypeTable mimeTypeTable;
+    private volatile DocumentSpooler spooler;
+
+    public static final PropertyDescriptor HEADER_SIZE = new PropertyDescriptor.Builder()
+            .name("Header Size")
+            .displayName("Header Size")
+            .description("Number of leading bytes of content to use for identification")
+            .required(true)
+            .defaultValue("64 KB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+
+    public static final Relationship REL_SUCCESS = new Relationship.Builder()
+            .name("success")
+            .description(
+                "All FlowFiles are routed to this relationship once their " +
+                "MIME type has been identified"
+            )
+            .build();
+
+    private List<PropertyDescriptor> descriptors;
+
+    private Set<Relationship> relationships;
+
+    @Override
+    protected void init(final ProcessorInitializationContext context) {
+        this.config = TikaConfig.getDefaultConfig();
+        this.detector = config.getDetector();
+        this.mimeTypes = config.getMimeRepository();
+        this.mimeTypeTable = new MimeTypeTable(mimeTypes);
+
+        final List<PropertyDescriptor> descriptors = new ArrayList<PropertyDescriptor>();
+        descriptors.add(HEADER_SIZE);
+        descriptors.add(DocumentSpooler.SPOOL_MEMORY_THRESHOLD);
+        descriptors.add(DocumentSpooler.SPOOL_DIRECTORY);
+        this.descriptors = Collections.unmodifiableList(descriptors);
+
+        final Set<Relationship> relationships = new HashSet<Relationship>();
+        relationships.add(REL_SUCCESS);
+        this.relationships = Collections.unmodifiableSet(relationships);
+    }
+
+    @Override
+    public Set<Relationship> getRelationships() {
+        return this.relationships;
+    }
+
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
+    }
+
+    @OnScheduled
+    public void onScheduled(final ProcessContext context) {
+        this.spooler = DocumentSpooler.create(context);
+    }
+
+    @Override
+    public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
+        FlowFile flowFile = session.get();
+        if (flowFile == null) {
+            return;
+        }
+
+        final long headerSize = Math.min(context.getProperty(HEADER_SIZE).asDataSize(DataUnit.B).longValue(), MAX_HEADER_SIZE);
+        final long fileSize = flowFile.getSize();
+
+        final String filename = flowFile.getAttribute(CoreAttributes.FILENAME.key());
+        final Metadata metadata = new Metadata();
+
+        // Add filename if it exists
+        if (filename != null) {
+            metadata.add(TikaMetadataKeys.RESOURCE_NAME_KEY, filename);
+        }
+
+        // Read only as much of the content as identification needs
+        final byte[] header = new byte[(int) Math.min(headerSize, fileSize)];
+        final AtomicInteger lengthRef = new AtomicInteger(0);
+        session.read(flowFile, new InputStreamCallback() {
+            @Override
+            public void process(final InputStream in) throws IOException {
+                int length = 0;
+                int read;
+                while (length < header.length && (read = in.read(header, length, header.length - length)) != -1) {
+                    length += read;
+                }
+                lengthRef.set(length);
+            }
+        });
+
+        final int length = lengthRef.get();
+        final AtomicReference<MediaType> mediaTypeRef = new AtomicReference<MediaType>(null);
+
+        try {
+            if (length >= fileSize) {
+                // The header is the whole document, so the full detector sees exactly what it would otherwise
+                try (final TikaInputStream tikaStream = TikaInputStream.get(new ByteArrayInputStream(header, 0, length))) {
+                    mediaTypeRef.set(detector.detect(tikaStream, metadata));
+                }
+            } else {
+                mediaTypeRef.set(mimeTypes.detect(new ByteArrayInputStream(header, 0, length), metadata));
+            }
+        } catch (IOException e) {
+            throw new ProcessException(e);
+        }
+
+        if (CONTAINER_TYPES.contains(mediaTypeRef.get()) && length < fileSize) {
+            session.read(flowFile, new InputStreamCallback() {
+                @Override
+                public void process(final InputStream stream) throws IOException {
+                    try (final DocumentSpooler.Spool spool = spooler.spool(stream, fileSize)) {
+                        mediaTypeRef.set(detector.detect(spool.getStream(), metadata));
+                    }
+                }
+            });
+        }
+
+        final String mimeType = mediaTypeRef.get().toString();
+
+        // Get MIME extension
+        String mimeExt = null;
+        try {
+            mimeExt = mimeTypeTable.get(mimeType).getExtension();
+        } catch (MimeTypeException e) {
+            getLogger().warn(e.getMessage(), e);
+        }
+
+        flowFile = session.putAttribute(flowFile, CoreAttributes.MIME_TYPE.key(), mimeType);
+        if (mimeExt != null && !mimeExt.isEmpty()) {
+            flowFile = session.putAttribute(flowFile, "mime.extension", mimeExt);
+        }
+
+        session.getProvenanceReporter().modifyAttributes(flowFile);
+        session.transfer(flowFile, REL_SUCCESS);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.tika;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MimeType;
+import org.apache.tika.mime.MimeTypeException;
+import org.apache.tika.mime.MimeTypes;
+
+/**
+ * Per MIME type metadata precomputed from a MIME repository, so that
+ * processors don't have to go back to the repository for every FlowFile.
+ * Every type the repository registers is loaded up front; anything else a
+ * detector comes up with is looked up once and then kept.
+ */
+final class MimeTypeTable {
+
+    private final MimeTypes mimeTypes;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    MimeTypeTable(final MimeTypes mimeTypes) {
+        this.mimeTypes = mimeTypes;
+        for (final MediaType type : mimeTypes.getMediaTypeRegistry().getTypes()) {
+            final String name = type.toString();
+            try {
+                entries.put(name, new Entry(mimeTypes.forName(name)));
+            } catch (MimeTypeException e) {
+                // Left for get() to retry and report
+            }
+        }
+    }
+
+    /**
+     * Returns the metadata for the given MIME type.
+     *
+     * @throws MimeTypeException if the MIME type is not a valid name
+     */
+    Entry get(final String mimeType) throws MimeTypeException {
+        Entry entry = entries.get(mimeType);
+        if (entry == null) {
+            entry = new Entry(mimeTypes.forName(mimeType));
+            final Entry existing = entries.putIfAbsent(mimeType, entry);
+            if (existing != null) {
+                entry = existing;
+            }
+        }
+        return entry;
+    }
+
+    static final class Entry {
+
+        private final String extension;
+
+        private Entry(final MimeType type) {
+            this.extension = type.getExtension();
+        }
+
+        /**
+         * The preferred file extension, including the leading dot, or an
+         * empty string if the MIME type doesn't have one.
+         */
+        String getExtension() {
+            return extension;
+        }
+    }
+}
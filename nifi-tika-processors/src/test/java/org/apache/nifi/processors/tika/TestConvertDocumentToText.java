@@ -20,18 +20,30 @@ import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 
 public class TestConvertDocumentToText {
 
+    @Rule
+    public TemporaryFolder spoolFolder = new TemporaryFolder();
+
     private TestRunner runner;
 
     @Before
@@ -137,6 +149,160 @@ public class TestConvertDocumentToText {
         runner.getFlowFilesForRelationship(ConvertDocumentToText.REL_SUCCESS).get(0).assertContentEquals(expected, "UTF-8");
     }
 
+    @Test
+    public void testPasswordAttributePdfExtraction() throws FileNotFoundException {
+        String expected = "\ntest\n\n\n";
+        InputStream is = getFileStream("test-password-test.pdf");
+        runner.setProperty(ConvertDocumentToText.PDF_PASSWORD, "${pdf.password}");
+        runner.enqueue(is, Collections.singletonMap("pdf.password", "test"));
+        runner.run();
+        runner.assertTransferCount("success", 1);
+        runner.getFlowFilesForRelationship(ConvertDocumentToText.REL_SUCCESS).get(0).assertContentEquals(expected, "UTF-8");
+    }
+
+    @Test
+    public void testPasswordFilePdfExtraction() throws IOException {
+        String expected = "\ntest\n\n\n";
+        Path passwordFile = spoolFolder.newFile("passwords.txt").toPath();
+        Files.write(passwordFile, "wrong\ntest\n".getBytes(StandardCharsets.UTF_8));
+        InputStream is = getFileStream("test-password-test.pdf");
+        runner.setProperty(ConvertDocumentToText.PASSWORD_FILE, passwordFile.toString());
+        runner.enqueue(is);
+        runner.run();
+        runner.assertTransferCount("success", 1);
+        runner.getFlowFilesForRelationship(ConvertDocumentToText.REL_SUCCESS).get(0).assertContentEquals(expected, "UTF-8");
+    }
+
+    @Test
+    public void testEncryptedPdfWithoutPassword() throws FileNotFoundException {
+        InputStream is = getFileStream("test-password-test.pdf");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(ConvertDocumentToText.REL_ENCRYPTED, 1);
+    }
+
+    @Test
+    public void testEncryptedPdfWithWrongPassword() throws FileNotFoundException {
+        InputStream is = getFileStream("test-password-test.pdf");
+        runner.setProperty(ConvertDocumentToText.PDF_PASSWORD, "wrong");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(ConvertDocumentToText.REL_ENCRYPTED, 1);
+    }
+
+    @Test
+    public void testOwnerPasswordPdfExtraction() throws FileNotFoundException {
+        String expected = "\ntest\n\n\n";
+        InputStream is = getFileStream("test-owner-password.pdf");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertTransferCount("success", 1);
+        runner.getFlowFilesForRelationship(ConvertDocumentToText.REL_SUCCESS).get(0).assertContentEquals(expected, "UTF-8");
+    }
+
+    @Test
+    public void testOwnerPasswordPdfExtractionWithPassword() throws FileNotFoundException {
+        String expected = "\ntest\n\n\n";
+        InputStream is = getFileStream("test-owner-password.pdf");
+        runner.setProperty(ConvertDocumentToText.PDF_PASSWORD, "wrong");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertTransferCount("success", 1);
+        runner.getFlowFilesForRelationship(ConvertDocumentToText.REL_SUCCESS).get(0).assertContentEquals(expected, "UTF-8");
+    }
+
+    @Test
+    public void testPasswordOoXmlExtraction() throws IOException {
+        String expected = "test\n\n";
+        Path passwordFile = spoolFolder.newFile("passwords.txt").toPath();
+        Files.write(passwordFile, "wrong\ntest\n".getBytes(StandardCharsets.UTF_8));
+        InputStream is = getFileStream("test-password-test.docx");
+        runner.setProperty(ConvertDocumentToText.PASSWORD_FILE, passwordFile.toString());
+        runner.enqueue(is);
+        runner.run();
+        runner.assertTransferCount("success", 1);
+        runner.getFlowFilesForRelationship(ConvertDocumentToText.REL_SUCCESS).get(0)
+                .assertContentEquals(expected, "UTF-8");
+    }
+
+    @Test
+    public void testEncryptedOoXmlWithoutPassword() throws FileNotFoundException {
+        InputStream is = getFileStream("test-password-test.docx");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(ConvertDocumentToText.REL_ENCRYPTED, 1);
+    }
+
+    @Test
+    public void testEncryptedOoXmlWithWrongPassword() throws FileNotFoundException {
+        InputStream is = getFileStream("test-password-test.docx");
+        runner.setProperty(ConvertDocumentToText.PDF_PASSWORD, "wrong");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(ConvertDocumentToText.REL_ENCRYPTED, 1);
+    }
+
+    @Test
+    public void testCorruptEncryptedPdf() {
+        runner.setProperty(ConvertDocumentToText.PDF_PASSWORD, "test");
+        runner.enqueue("%PDF-1.4\ntrailer\n<< /Encrypt 1 0 R >>\n%%EOF\n".getBytes(StandardCharsets.US_ASCII));
+        runner.run();
+        runner.assertAllFlowFilesTransferred(ConvertDocumentToText.REL_FAILURE, 1);
+    }
+
+    @Test
+    public void testSpooledPdfExtraction() throws FileNotFoundException {
+        String expected = "\ntest\n\n\n";
+        InputStream is = getFileStream("test-basic.pdf");
+        File spoolDirectory = spoolFolder.getRoot();
+        runner.setProperty(DocumentSpooler.SPOOL_MEMORY_THRESHOLD, "0 B");
+        runner.setProperty(DocumentSpooler.SPOOL_DIRECTORY, spoolDirectory.getAbsolutePath());
+        runner.enqueue(is);
+        runner.run();
+        runner.assertTransferCount("success", 1);
+        runner.getFlowFilesForRelationship(ConvertDocumentToText.REL_SUCCESS).get(0).assertContentEquals(expected, "UTF-8");
+        assertEquals(0, spoolDirectory.list().length);
+    }
+
+    @Test
+    public void testSpooledOoXmlExtraction() throws FileNotFoundException {
+        String expected = "test\n";
+        InputStream is = getFileStream("test-ooxml.docx");
+        runner.setProperty(DocumentSpooler.SPOOL_MEMORY_THRESHOLD, "0 B");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertTransferCount("success", 1);
+        runner.getFlowFilesForRelationship(ConvertDocumentToText.REL_SUCCESS).get(0)
+                .assertContentEquals(expected, "UTF-8");
+    }
+
+    @Test
+    public void testOutputFilename() throws FileNotFoundException {
+        InputStream is = getFileStream("test-basic.pdf");
+        runner.enqueue(is, Collections.singletonMap("filename", "report.pdf.backup.pdf"));
+        runner.run();
+        runner.assertTransferCount("success", 1);
+        runner.getFlowFilesForRelationship(ConvertDocumentToText.REL_SUCCESS).get(0)
+                .assertAttributeEquals("filename", "report.pdf.backup.txt");
+    }
+
+    @Test
+    public void testOutputFilenameTemplate() throws FileNotFoundException {
+        InputStream is = getFileStream("test-basic.pdf");
+        runner.setProperty(ConvertDocumentToText.OUTPUT_FILENAME, "{filename}-{basename}{extension}.txt");
+        runner.enqueue(is, Collections.singletonMap("filename", "report.PDF"));
+        runner.run();
+        runner.assertTransferCount("success", 1);
+        runner.getFlowFilesForRelationship(ConvertDocumentToText.REL_SUCCESS).get(0)
+                .assertAttributeEquals("filename", "report.PDF-report.pdf.txt");
+    }
+
+    @Test
+    public void testInvalidOutputFilenameTemplate() {
+        runner.setProperty(ConvertDocumentToText.OUTPUT_FILENAME, "{name}.txt");
+        runner.assertNotValid();
+    }
+
     // This file type works.  However, it comes with a TON of textual baggage so we can't just test
     // to see if the resulting output equals the expected text in this code.  We have to test if the
     // resulting output CONTAINS the expected text.  But, we can't use getData() because that's private
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.tika;
+
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class TestDocumentSpooler {
+
+    @Rule
+    public TemporaryFolder spoolFolder = new TemporaryFolder();
+
+    @Test
+    public void testInMemoryContainerUsesSpoolDirectory() throws IOException {
+        File spoolDirectory = spoolFolder.getRoot();
+        DocumentSpooler spooler = new DocumentSpooler(1024 * 1024, spoolDirectory);
+        File document = getFile("test.docx");
+
+        try (InputStream in = new FileInputStream(document);
+             DocumentSpooler.Spool spool = spooler.spool(in, document.length())) {
+            TikaInputStream stream = spool.getStream();
+            TikaConfig.getDefaultConfig().getDetector().detect(stream, new Metadata());
+            assertTrue(stream.hasFile());
+            assertEquals(spoolDirectory, stream.getFile().getParentFile());
+        }
+
+        assertEquals(0, spoolDirectory.list().length);
+    }
+
+    @Test
+    public void testLongerContentIsSpooledInFull() throws IOException {
+        File spoolDirectory = spoolFolder.getRoot();
+        DocumentSpooler spooler = new DocumentSpooler(1024 * 1024, spoolDirectory);
+        File document = getFile("test.docx");
+
+        // Claim less content than there is, which forces the fallback to a file
+        try (InputStream in = new FileInputStream(document);
+             DocumentSpooler.Spool spool = spooler.spool(in, document.length() - 10)) {
+            TikaInputStream stream = spool.getStream();
+            assertEquals(document.length(), stream.getLength());
+        }
+
+        assertEquals(0, spoolDirectory.list().length);
+    }
+
+    private File getFile(String relFilePath) {
+        ClassLoader loader = Thread.currentThread()
+                .getContextClassLoader();
+        URL sctUrl = loader.getResource(relFilePath);
+        if (sctUrl == null) {
+            throw new RuntimeException("Bad test file path [" + relFilePath + "]");
+        }
+        return new File(sctUrl.getFile());
+    }
+
+}
@@ -19,11 +19,25 @@ package org.apache.nifi.processors.tika;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
 
 
 public class TestExtractDocumentMetadata {
 
+    @Rule
+    public TemporaryFolder spoolFolder = new TemporaryFolder();
+
     private TestRunner runner;
 
     @Before
@@ -36,4 +50,40 @@ public class TestExtractDocumentMetadata {
 
     }
 
+    @Test
+    public void testSpooledPdfMetadata() throws FileNotFoundException {
+        File spoolDirectory = spoolFolder.getRoot();
+        InputStream is = getFileStream("test-basic.pdf");
+        runner.setProperty(DocumentSpooler.SPOOL_MEMORY_THRESHOLD, "0 B");
+        runner.setProperty(DocumentSpooler.SPOOL_DIRECTORY, spoolDirectory.getAbsolutePath());
+        runner.enqueue(is);
+        runner.run();
+        runner.assertTransferCount(ExtractDocumentMetadata.REL_SUCCESS, 1);
+        runner.assertTransferCount(ExtractDocumentMetadata.REL_ORIGINAL, 1);
+        runner.getFlowFilesForRelationship(ExtractDocumentMetadata.REL_SUCCESS).get(0)
+                .assertAttributeEquals("mime.type", "application/pdf");
+        assertEquals(0, countSpoolFiles(spoolDirectory));
+    }
+
+    private int countSpoolFiles(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("nifi-tika-") && name.endsWith(".spool");
+            }
+        });
+        return files == null ? 0 : files.length;
+    }
+
+    private InputStream getFileStream(String relFilePath) throws FileNotFoundException
+    {
+        ClassLoader loader = Thread.currentThread()
+                .getContextClassLoader();
+        URL sctUrl = loader.getResource(relFilePath);
+        if (sctUrl == null) {
+            throw new RuntimeException("Bad test file path [" + relFilePath + "]");
+        }
+        return new FileInputStream(sctUrl.getFile());
+    }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.tika;
+
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.URL;
+
+
+public class TestIdentifyDocumentMimeType {
+
+    private TestRunner runner;
+
+    @Before
+    public void init() {
+        runner = TestRunners.newTestRunner(IdentifyDocumentMimeType.class);
+    }
+
+    @Test
+    public void testPdfIdentification() throws FileNotFoundException {
+        InputStream is = getFileStream("test-basic.pdf");
+        runner.setProperty(IdentifyDocumentMimeType.HEADER_SIZE, "1 KB");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(IdentifyDocumentMimeType.REL_SUCCESS, 1);
+        MockFlowFile flowFile = runner.getFlowFilesForRelationship(IdentifyDocumentMimeType.REL_SUCCESS).get(0);
+        flowFile.assertAttributeEquals("mime.type", "application/pdf");
+        flowFile.assertAttributeEquals("mime.extension", ".pdf");
+    }
+
+    @Test
+    public void testDocIdentification() throws FileNotFoundException {
+        InputStream is = getFileStream("test.doc");
+        runner.setProperty(IdentifyDocumentMimeType.HEADER_SIZE, "1 KB");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(IdentifyDocumentMimeType.REL_SUCCESS, 1);
+        MockFlowFile flowFile = runner.getFlowFilesForRelationship(IdentifyDocumentMimeType.REL_SUCCESS).get(0);
+        flowFile.assertAttributeEquals("mime.type", "application/msword");
+        flowFile.assertAttributeEquals("mime.extension", ".doc");
+    }
+
+    @Test
+    public void testDocxIdentification() throws FileNotFoundException {
+        InputStream is = getFileStream("test.docx");
+        runner.setProperty(IdentifyDocumentMimeType.HEADER_SIZE, "1 KB");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(IdentifyDocumentMimeType.REL_SUCCESS, 1);
+        MockFlowFile flowFile = runner.getFlowFilesForRelationship(IdentifyDocumentMimeType.REL_SUCCESS).get(0);
+        flowFile.assertAttributeEquals("mime.type", "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+        flowFile.assertAttributeEquals("mime.extension", ".docx");
+    }
+
+    @Test
+    public void testWholeDocumentIdentification() throws FileNotFoundException {
+        InputStream is = getFileStream("test-odf.odt");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(IdentifyDocumentMimeType.REL_SUCCESS, 1);
+        MockFlowFile flowFile = runner.getFlowFilesForRelationship(IdentifyDocumentMimeType.REL_SUCCESS).get(0);
+        flowFile.assertAttributeEquals("mime.type", "application/vnd.oasis.opendocument.text");
+        flowFile.assertAttributeEquals("mime.extension", ".odt");
+    }
+
+    @Test
+    public void testHeaderSizeAboveIntRange() throws FileNotFoundException {
+        InputStream is = getFileStream("test-basic.pdf");
+        runner.setProperty(IdentifyDocumentMimeType.HEADER_SIZE, "3 GB");
+        runner.enqueue(is);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(IdentifyDocumentMimeType.REL_SUCCESS, 1);
+        MockFlowFile flowFile = runner.getFlowFilesForRelationship(IdentifyDocumentMimeType.REL_SUCCESS).get(0);
+        flowFile.assertAttributeEquals("mime.type", "application/pdf");
+    }
+
+    private InputStream getFileStream(String relFilePath) throws FileNotFoundException
+    {
+        ClassLoader loader = Thread.currentThread()
+                .getContextClassLoader();
+        URL sctUrl = loader.getResource(relFilePath);
+        if (sctUrl == null) {
+            throw new RuntimeException("Bad test file path [" + relFilePath + "]");
+        }
+        return new FileInputStream(sctUrl.getFile());
+    }
+
+}